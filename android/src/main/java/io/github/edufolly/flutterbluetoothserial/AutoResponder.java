@@ -0,0 +1,274 @@
+package io.github.edufolly.flutterbluetoothserial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// Replies to byte patterns in inbound data directly from connection reader thread.
+///
+/// Useful for heartbeats and acknowledgements which must be answered quickly,
+/// without the round trip through UI thread and Flutter. Each rule matches pattern
+/// in inbound data and writes reply, optionally with bytes following the pattern
+/// (like sequence number) captured into the reply. Matched bytes might be hidden
+/// from the data passed further to `onRead`.
+///
+/// Patterns are matched also across chunks of read data. Bytes at the end of chunk which
+/// might start hidden match are held back until following data decides whether they are hidden,
+/// but not longer than hold timeout, after which the connection passes them further (`release`).
+public class AutoResponder
+{
+    public static final long DEFAULT_HOLD_TIMEOUT_MILLIS = 50;
+
+    /// Writes reply to the remote device
+    public interface Replier {
+        public void reply(byte[] data);
+    }
+
+    /// Single pattern-reply rule
+    public static class Rule {
+        public final byte[] pattern;
+        public final byte[] reply;
+        public final int captureOffset;
+        public final int captureLength;
+        public final boolean hidden;
+
+        // Statistics
+        private final AtomicLong matchedCount = new AtomicLong();
+        private final AtomicLong hiddenBytes = new AtomicLong();
+
+        /// Absolute position in the stream, from where next match could start (set when added, then used by reader)
+        private long nextSearchPosition = 0;
+
+        /// Creates rule replying with `reply`, in which `captureLength` bytes following the pattern
+        /// are copied at `captureOffset` (no capture if length is 0).
+        public Rule(byte[] pattern, byte[] reply, int captureOffset, int captureLength, boolean hidden) {
+            if (pattern == null || pattern.length == 0) {
+                throw new IllegalArgumentException("pattern must not be empty");
+            }
+            if (reply == null) {
+                throw new IllegalArgumentException("reply must not be null");
+            }
+            if (captureLength < 0 || captureOffset < 0 || captureOffset > reply.length || captureLength > reply.length - captureOffset) {
+                throw new IllegalArgumentException("capture must fit in the reply");
+            }
+            this.pattern = pattern;
+            this.reply = reply;
+            this.captureOffset = captureOffset;
+            this.captureLength = captureLength;
+            this.hidden = hidden;
+        }
+
+        int matchLength() {
+            return pattern.length + captureLength;
+        }
+
+        public Map<String, Object> getStats() {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("matched", matchedCount.get());
+            stats.put("hiddenBytes", hiddenBytes.get());
+            return stats;
+        }
+    }
+
+    private final List<Rule> rules = new CopyOnWriteArrayList<>();
+
+    private volatile long holdTimeoutMillis = DEFAULT_HOLD_TIMEOUT_MILLIS;
+
+    // Reader state, used only under read lock of the connection
+    /// Last bytes of previous chunks, to match patterns across chunks
+    private byte[] tail = new byte[0];
+    /// Count of last bytes of the tail not passed further yet, since they might start hidden match
+    private int heldLength = 0;
+    /// Which of the held bytes are already hidden, `null` if none
+    private boolean[] heldHidden = null;
+    /// Absolute position in the stream of the first byte of next chunk
+    private volatile long position = 0;
+
+
+
+    /// Adds rule, returns its index
+    public synchronized int addRule(Rule rule) {
+        // Match only data received after adding the rule
+        rule.nextSearchPosition = position;
+        rules.add(rule);
+        return rules.size() - 1;
+    }
+
+    /// Removes all the rules
+    public synchronized void clearRules() {
+        rules.clear();
+    }
+
+    /// Tells whether there are no rules nor held data, so chunks could be skipped instead of processed
+    public boolean isIdle() {
+        return rules.isEmpty() && heldLength == 0;
+    }
+
+    /// Tells whether some data is held, waiting for following data or `release`
+    public boolean isHolding() {
+        return heldLength != 0;
+    }
+
+    /// Returns maximal time of holding data without following data, after which it should be released
+    public long getHoldTimeoutMillis() {
+        return holdTimeoutMillis;
+    }
+
+    /// Changes maximal time of holding data, useful for protocols with longer gaps inside hidden patterns
+    public void setHoldTimeoutMillis(long holdTimeoutMillis) {
+        if (holdTimeoutMillis < 0) {
+            throw new IllegalArgumentException("hold timeout must not be negative");
+        }
+        this.holdTimeoutMillis = holdTimeoutMillis;
+    }
+
+    /// Returns statistics of each rule, in order of adding
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Rule rule : rules) {
+            list.add(rule.getStats());
+        }
+        return list;
+    }
+
+    /// Processes chunk of inbound data, replying to matched patterns.
+    /// Returns the data to be passed further (without hidden matches), or `null` if nothing is left.
+    public byte[] process(byte[] buffer, int length, Replier replier) {
+        // Window is tail of previous chunks followed by current chunk
+        final byte[] window;
+        if (tail.length == 0) {
+            window = buffer;
+        }
+        else {
+            window = new byte[tail.length + length];
+            System.arraycopy(tail, 0, window, 0, tail.length);
+            System.arraycopy(buffer, 0, window, tail.length, length);
+        }
+        final int windowLength = tail.length + length;
+        final long windowPosition = position - tail.length;
+        // Advanced before matching, so rules added meanwhile start after this chunk
+        position += length;
+        // Bytes of the window before are already passed further
+        final int heldStart = tail.length - heldLength;
+
+        // Indexed from `heldStart`
+        boolean[] hiddenMask = null;
+        if (heldHidden != null) {
+            hiddenMask = new boolean[windowLength - heldStart];
+            System.arraycopy(heldHidden, 0, hiddenMask, 0, heldLength);
+        }
+        int maxMatchLength = 0;
+        // Bytes of the window from there might start hidden match, so are held until next chunk
+        int holdStart = windowLength;
+        for (Rule rule : rules) {
+            maxMatchLength = Math.max(maxMatchLength, rule.matchLength());
+
+            int from = (int) Math.max(0, rule.nextSearchPosition - windowPosition);
+            int index;
+            while ((index = indexOf(window, windowLength, rule.pattern, from)) >= 0) {
+                if (index + rule.matchLength() > windowLength) {
+                    // Captured bytes not received yet, match will be retried with next chunk
+                    break;
+                }
+
+                byte[] reply = rule.reply;
+                if (rule.captureLength > 0) {
+                    reply = Arrays.copyOf(rule.reply, rule.reply.length);
+                    System.arraycopy(window, index + rule.pattern.length, reply, rule.captureOffset, rule.captureLength);
+                }
+                replier.reply(reply);
+                rule.matchedCount.incrementAndGet();
+
+                if (rule.hidden) {
+                    if (hiddenMask == null) {
+                        hiddenMask = new boolean[windowLength - heldStart];
+                    }
+                    int start = Math.max(index, heldStart);
+                    Arrays.fill(hiddenMask, start - heldStart, index + rule.matchLength() - heldStart, true);
+                    rule.hiddenBytes.addAndGet(index + rule.matchLength() - start);
+                }
+
+                from = index + rule.matchLength();
+                rule.nextSearchPosition = windowPosition + from;
+            }
+
+            if (rule.hidden) {
+                // Either match waiting for captured bytes, or pattern prefix at the end of the window
+                int start = (index >= 0) ? index : indexOfPrefix(window, windowLength, rule.pattern, from);
+                holdStart = Math.min(holdStart, Math.max(start, heldStart));
+            }
+        }
+
+        // Keep enough bytes to match patterns crossing the chunks boundary, and the held ones
+        int keep = Math.min(Math.max(maxMatchLength - 1, windowLength - holdStart), windowLength);
+        tail = Arrays.copyOfRange(window, windowLength - keep, windowLength);
+        heldLength = windowLength - holdStart;
+        heldHidden = (hiddenMask == null || heldLength == 0) ? null : Arrays.copyOfRange(hiddenMask, holdStart - heldStart, windowLength - heldStart);
+
+        return visible(window, heldStart, holdStart, hiddenMask);
+    }
+
+    /// Returns the held data which is not hidden, or `null` if nothing is left.
+    /// Used when no following data came in time, the rules were cleared, or on disconnection.
+    public byte[] release() {
+        byte[] data = visible(tail, tail.length - heldLength, tail.length, heldHidden);
+        tail = new byte[0];
+        heldLength = 0;
+        heldHidden = null;
+        return data;
+    }
+
+    /// Skips chunk of inbound data without processing, used when there are no rules
+    public void skip(int length) {
+        if (tail.length != 0) {
+            tail = new byte[0];
+        }
+        position += length;
+    }
+
+    /// Returns bytes of the range not marked in `hidden` mask (indexed from `from`), or `null` if none
+    private static byte[] visible(byte[] data, int from, int to, boolean[] hidden) {
+        if (hidden == null) {
+            return (from == to) ? null : Arrays.copyOfRange(data, from, to);
+        }
+        byte[] visible = new byte[to - from];
+        int visibleLength = 0;
+        for (int i = from; i < to; i++) {
+            if (!hidden[i - from]) {
+                visible[visibleLength++] = data[i];
+            }
+        }
+        return (visibleLength == 0) ? null : Arrays.copyOf(visible, visibleLength);
+    }
+
+    private static int indexOf(byte[] data, int length, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /// Returns index of the first pattern prefix ending the data, or `length` if there is none
+    private static int indexOfPrefix(byte[] data, int length, byte[] pattern, int from) {
+        outer:
+        for (int i = Math.max(from, length - pattern.length + 1); i < length; i++) {
+            for (int j = 0; i + j < length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return length;
+    }
+}
@@ -1,10 +1,14 @@
 package io.github.edufolly.flutterbluetoothserial;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.UUID;
 import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
@@ -19,6 +23,20 @@ public abstract class BluetoothConnection
 
     protected ConnectionThread connectionThread = null;
 
+    /// Recorder of the traffic, if any
+    protected volatile TrafficRecorder trafficRecorder = null;
+    protected int trafficRecorderId = 0;
+
+    /// Responder to patterns in inbound data, replying directly from reader thread
+    protected final AutoResponder autoResponder = new AutoResponder();
+
+    /// Guards processing read data by auto responder and passing it to `onRead`, which happens
+    /// on reader thread, but also on releasing held data by timer or when clearing the rules
+    private final Object readLock = new Object();
+
+    /// Timer releasing data held by auto responders of all connections, created when first needed
+    private static ScheduledThreadPoolExecutor holdTimer = null;
+
     public boolean isConnected() {
         return connectionThread != null;
     }
@@ -56,13 +74,32 @@ public abstract class BluetoothConnection
 
         socket.connect();
 
-        connectionThread = new ConnectionThread(socket);
-        connectionThread.start();
+        try {
+            connect(socket.getInputStream(), socket.getOutputStream(), socket);
+        }
+        catch (IOException ex) {
+            // Do not leave connected socket behind
+            try {
+                socket.close();
+            }
+            catch (IOException closeEx) {}
+            throw ex;
+        }
     }
     /// Connects to given device by hardware address (default UUID used)
     public void connect(String address) throws IOException {
         connect(address, DEFAULT_UUID);
     }
+    /// Starts handling connection over given streams, `socket` is closed on disconnection.
+    /// Allows using other transports than Bluetooth socket, for example in traffic replay.
+    protected void connect(InputStream input, OutputStream output, Closeable socket) throws IOException {
+        if (isConnected()) {
+            throw new IOException("already connected");
+        }
+
+        connectionThread = new ConnectionThread(input, output, socket);
+        connectionThread.start();
+    }
     
     /// Disconnects current session (ignore if not connected)
     public void disconnect() {
@@ -74,11 +111,57 @@ public abstract class BluetoothConnection
 
     /// Writes to connected remote device 
     public void write(byte[] data) throws IOException {
+        write(data, 0, data.length);
+    }
+    /// Writes part of the array to connected remote device, without copying it
+    public void write(byte[] data, int offset, int length) throws IOException {
         if (!isConnected()) {
             throw new IOException("not connected");
         }
+        if (offset < 0 || length < 0 || offset > data.length || length > data.length - offset) {
+            throw new IndexOutOfBoundsException("offset " + offset + " and length " + length + " out of range for " + data.length + " bytes");
+        }
+
+        connectionThread.write(data, offset, length);
+    }
+
+    /// Sets recorder for the connection traffic, `null` stops recording
+    public void setTrafficRecorder(TrafficRecorder recorder, int id) {
+        this.trafficRecorderId = id;
+        this.trafficRecorder = recorder;
+    }
 
-        connectionThread.write(data);
+    /// Returns responder for patterns in inbound data, rules could be added any time
+    public AutoResponder getAutoResponder() {
+        return autoResponder;
+    }
+
+    /// Removes all rules of auto responder, passing further data held for them
+    public void clearAutoResponses() {
+        synchronized (readLock) {
+            autoResponder.clearRules();
+            releaseHeld();
+        }
+    }
+
+    /// Passes further data held by auto responder, called under read lock
+    private void releaseHeld() {
+        byte[] held = autoResponder.release();
+        if (held != null) {
+            onRead(held);
+        }
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor getHoldTimer() {
+        if (holdTimer == null) {
+            holdTimer = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+                Thread thread = new Thread(runnable, "bluetooth-hold-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            holdTimer.setRemoveOnCancelPolicy(true);
+        }
+        return holdTimer;
     }
 
     /// Callback for reading data.
@@ -89,25 +172,20 @@ public abstract class BluetoothConnection
 
     /// Thread to handle connection I/O
     private class ConnectionThread extends Thread  {
-        private final BluetoothSocket socket;
+        private final Closeable socket;
         private final InputStream input;
         private final OutputStream output;
+        private final Object writeLock = new Object();
         private boolean requestedClosing = false;
+
+        // Releasing of held data, guarded by read lock
+        private long chunksRead = 0;
+        private ScheduledFuture<?> holdRelease = null;
         
-        ConnectionThread(BluetoothSocket socket) {
+        ConnectionThread(InputStream input, OutputStream output, Closeable socket) {
             this.socket = socket;
-            InputStream tmpIn = null;
-            OutputStream tmpOut = null;
-
-            try {
-                tmpIn = socket.getInputStream();
-                tmpOut = socket.getOutputStream();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-
-            this.input = tmpIn;
-            this.output = tmpOut;
+            this.input = input;
+            this.output = output;
         }
 
         /// Thread main code
@@ -118,14 +196,45 @@ public abstract class BluetoothConnection
             while (!requestedClosing) {
                 try {
                     bytes = input.read(buffer);
-
-                    onRead(Arrays.copyOf(buffer, bytes));
+                    if (bytes < 0) {
+                        // End of stream, might happen for other streams than Bluetooth socket
+                        break;
+                    }
+
+                    TrafficRecorder recorder = trafficRecorder;
+                    if (recorder != null) {
+                        recorder.record(trafficRecorderId, TrafficRecorder.DIRECTION_IN, buffer, 0, bytes);
+                    }
+
+                    synchronized (readLock) {
+                        chunksRead += 1;
+                        if (autoResponder.isIdle()) {
+                            autoResponder.skip(bytes);
+                            onRead(Arrays.copyOf(buffer, bytes));
+                        }
+                        else {
+                            byte[] data = autoResponder.process(buffer, bytes, this::reply);
+                            if (data != null) {
+                                onRead(data);
+                            }
+                            scheduleHoldRelease();
+                        }
+                    }
                 } catch (IOException e) {
                     // `input.read` throws when closed by remote device
                     break;
                 }
             }
 
+            // Pass data held by auto responder, no following data will decide whether to hide it
+            synchronized (readLock) {
+                if (holdRelease != null) {
+                    holdRelease.cancel(false);
+                    holdRelease = null;
+                }
+                releaseHeld();
+            }
+
             // Make sure output stream is closed
             if (output != null) {
                 try {
@@ -150,15 +259,49 @@ public abstract class BluetoothConnection
             connectionThread = null;
         }
 
-        /// Writes to output stream
-        public void write(byte[] bytes) {
+        /// Schedules releasing data held by auto responder, if no more data is read before timeout
+        private void scheduleHoldRelease() {
+            if (holdRelease != null) {
+                holdRelease.cancel(false);
+                holdRelease = null;
+            }
+            if (!autoResponder.isHolding()) {
+                return;
+            }
+
+            final long chunk = chunksRead;
+            holdRelease = getHoldTimer().schedule(() -> {
+                synchronized (readLock) {
+                    // Following data might have come in the meantime
+                    if (chunk == chunksRead) {
+                        holdRelease = null;
+                        releaseHeld();
+                    }
+                }
+            }, autoResponder.getHoldTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        /// Writes auto responder reply to output stream
+        private void reply(byte[] bytes) {
             try {
-                output.write(bytes);
+                write(bytes, 0, bytes.length);
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
 
+        /// Writes to output stream, locked since replies are written also from this thread
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            synchronized (writeLock) {
+                output.write(bytes, offset, length);
+
+                TrafficRecorder recorder = trafficRecorder;
+                if (recorder != null) {
+                    recorder.record(trafficRecorderId, TrafficRecorder.DIRECTION_OUT, bytes, offset, length);
+                }
+            }
+        }
+
         /// Stops the thread, disconnects
         public void cancel() {
             if (requestedClosing) {
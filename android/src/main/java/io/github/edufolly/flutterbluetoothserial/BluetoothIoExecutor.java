@@ -0,0 +1,220 @@
+package io.github.edufolly.flutterbluetoothserial;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// Bounded executor for connection I/O work (connecting, writing, disposing), owned by the plugin.
+///
+/// Tasks wait in bounded queue and are rejected (`RejectedExecutionException`) if it is full,
+/// so callers can report the error instead of piling up work. Time spent by tasks in the queue
+/// is measured, so pool size can be tuned from `getStats`.
+///
+/// Tasks which must keep their order (like writes to single connection) should be executed
+/// through `SerialQueue`, which runs them one at a time on the shared threads.
+public class BluetoothIoExecutor
+{
+    public static final int DEFAULT_POOL_SIZE = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    public static final long DEFAULT_KEEP_ALIVE_SECONDS = 30;
+    /// Serial queue gives its thread back to the executor after running that many tasks,
+    /// so busy queues do not starve the others
+    public static final int SERIAL_BATCH_SIZE = 16;
+
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+
+    // Statistics
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+
+
+    public BluetoothIoExecutor(String name, int poolSize, int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        this.executor = new ThreadPoolExecutor(
+            poolSize, poolSize,
+            DEFAULT_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueCapacity),
+            new NamedThreadFactory(name),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        // Let idle threads die, there might be no connections for long time
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+    public BluetoothIoExecutor(String name) {
+        this(name, DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+
+
+    /// Schedules the task, throws `RejectedExecutionException` if the queue is full or executor is shut down
+    public void execute(Runnable task) throws RejectedExecutionException {
+        submit(measured(task));
+    }
+
+    /// Creates queue executing its tasks in order, one at a time, on threads of this executor
+    public SerialQueue newSerialQueue() {
+        return new SerialQueue();
+    }
+
+    private void submit(Runnable task) throws RejectedExecutionException {
+        try {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException ex) {
+            rejectedCount.incrementAndGet();
+            throw ex;
+        }
+    }
+
+    /// Wraps the task to measure time it spent waiting for execution
+    private Runnable measured(Runnable task) {
+        final long enqueuedAt = System.nanoTime();
+        return () -> {
+            long wait = System.nanoTime() - enqueuedAt;
+            totalQueueWaitNanos.addAndGet(wait);
+            long max;
+            while (wait > (max = maxQueueWaitNanos.get())) {
+                if (maxQueueWaitNanos.compareAndSet(max, wait)) {
+                    break;
+                }
+            }
+            executedCount.incrementAndGet();
+
+            task.run();
+        };
+    }
+
+    /// Changes number of threads used by the executor, excess threads stop once they finish their tasks
+    public void setPoolSize(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("pool size must be positive");
+        }
+        // Order matters, core size cannot exceed maximum size
+        if (poolSize > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(poolSize);
+            executor.setCorePoolSize(poolSize);
+        }
+        else {
+            executor.setCorePoolSize(poolSize);
+            executor.setMaximumPoolSize(poolSize);
+        }
+    }
+
+    /// Returns statistics of the executor, useful for tuning its pool size
+    public Map<String, Object> getStats() {
+        long executed = executedCount.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("poolSize", executor.getMaximumPoolSize());
+        stats.put("threads", executor.getPoolSize());
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("queued", executor.getQueue().size());
+        stats.put("executed", executed);
+        stats.put("rejected", rejectedCount.get());
+        stats.put("averageQueueWaitMicros", executed == 0 ? 0 : totalQueueWaitNanos.get() / executed / 1000);
+        stats.put("maxQueueWaitMicros", maxQueueWaitNanos.get() / 1000);
+        return stats;
+    }
+
+    /// Stops accepting new tasks, already scheduled ones are still executed
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+
+
+    /// Executes tasks in order of submission, one at a time, on threads of the executor.
+    ///
+    /// The queue is bounded by capacity of the executor queue, so single busy queue
+    /// cannot hold more work than the executor would accept.
+    /// Tasks are run in batches of `SERIAL_BATCH_SIZE`, so busy queues take turns on the threads.
+    public class SerialQueue implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean scheduled = false;
+
+        private SerialQueue() {}
+
+        /// Schedules the task after all previously scheduled ones, throws `RejectedExecutionException` if the queue is full
+        @Override
+        public synchronized void execute(Runnable task) throws RejectedExecutionException {
+            if (tasks.size() >= queueCapacity) {
+                rejectedCount.incrementAndGet();
+                throw new RejectedExecutionException("serial queue is full");
+            }
+            tasks.add(measured(task));
+
+            if (!scheduled) {
+                try {
+                    submit(this::drain);
+                }
+                catch (RejectedExecutionException ex) {
+                    tasks.removeLast();
+                    throw ex;
+                }
+                scheduled = true;
+            }
+        }
+
+        /// Runs batch of queued tasks, then schedules itself again if there are more
+        private void drain() {
+            while (true) {
+                for (int i = 0; i < SERIAL_BATCH_SIZE; i++) {
+                    Runnable task;
+                    synchronized (this) {
+                        task = tasks.poll();
+                        if (task == null) {
+                            scheduled = false;
+                            return;
+                        }
+                    }
+
+                    try {
+                        task.run();
+                    }
+                    catch (RuntimeException ex) {
+                        // Following tasks must run anyway
+                        ex.printStackTrace();
+                    }
+                }
+
+                // Continue after tasks of other queues waiting for the threads
+                try {
+                    executor.execute(this::drain);
+                    return;
+                }
+                catch (RejectedExecutionException ex) {
+                    // Executor is full or shut down, continue on this thread, already queued tasks must run
+                }
+            }
+        }
+    }
+
+    /// Thread factory giving the threads recognizable names
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger lastThreadNumber = new AtomicInteger(0);
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + lastThreadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
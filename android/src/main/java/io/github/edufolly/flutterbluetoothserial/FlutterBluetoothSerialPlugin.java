@@ -15,8 +15,8 @@ import androidx.core.content.ContextCompat;
 
 import android.util.Log;
 import android.util.SparseArray;
-import android.os.AsyncTask;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
@@ -24,6 +24,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.EventChannel.StreamHandler;
@@ -34,6 +36,8 @@ import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
 import io.flutter.plugin.common.PluginRegistry.Registrar;
 import io.flutter.plugin.common.PluginRegistry.RequestPermissionsResultListener;
+import io.flutter.plugin.common.PluginRegistry.ViewDestroyListener;
+import io.flutter.view.FlutterNativeView;
 
 public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestPermissionsResultListener {
     // Plugin
@@ -46,15 +50,16 @@ public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestP
     private static final int REQUEST_COARSE_LOCATION_PERMISSIONS = 1451;
     private static final int REQUEST_ENABLE_BLUETOOTH = 2137;
     
-    // General Bluetooth
+    // General Bluetooth (initialized on first method call)
     private BluetoothAdapter bluetoothAdapter;
     private BluetoothManager bluetoothManager;
+    private boolean bluetoothInitialized = false;
     
-    // State
-    private final BroadcastReceiver stateReceiver;
+    // State (receiver initialized on first listen)
+    private BroadcastReceiver stateReceiver;
     private EventSink stateSink;
 
-    // Discovery
+    // Discovery (receiver initialized on first use)
     private EventChannel discoveryChannel;
     private EventSink discoverySink;
     private StreamHandler discoveryStreamHandler;
@@ -67,12 +72,34 @@ public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestP
     /// Last ID given to any connection, used to avoid duplicate IDs 
     private int lastConnectionId = 0;
 
+    /// Executor for connections I/O work (writing and disposing), initialized on first use
+    private BluetoothIoExecutor ioExecutor = null;
+
+    /// Executor for connecting, separate since connecting might block for seconds and should not stall writes
+    private BluetoothIoExecutor connectExecutor = null;
+
+    /// Maximal number of connections being established at once
+    private static final int MAX_CONCURRENT_CONNECTS = 2;
+
+    /// Recorder of all connections traffic, if recording was started
+    private TrafficRecorder trafficRecorder = null;
+
 
 
     /// Registers plugin in Flutter plugin system
     public static void registerWith(Registrar registrar) {
+        final long startNanos = System.nanoTime();
         final FlutterBluetoothSerialPlugin instance = new FlutterBluetoothSerialPlugin(registrar);
         registrar.addRequestPermissionsResultListener(instance);
+        registrar.addViewDestroyListener(new ViewDestroyListener() {
+            @Override
+            public boolean onViewDestroy(FlutterNativeView view) {
+                // Make sure traffic recording is complete
+                instance.setTrafficRecorder(null);
+                return false;
+            }
+        });
+        Log.d(TAG, "Registered in " + (System.nanoTime() - startNanos) / 1000 + " us");
     }
 
     /// Constructs the plugin instance
@@ -85,16 +112,86 @@ public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestP
             methodChannel.setMethodCallHandler(this);
         }
         
-        // General Bluetooth
+        // State
         {
-            this.bluetoothManager = (BluetoothManager) registrar.activity().getSystemService(Context.BLUETOOTH_SERVICE);
-            assert this.bluetoothManager != null;
+            EventChannel stateChannel = new EventChannel(registrar.messenger(), PLUGIN_NAMESPACE + "/state");
+
+            stateChannel.setStreamHandler(new StreamHandler() {
+                @Override
+                public void onListen(Object o, EventSink eventSink) {
+                    stateSink = eventSink;
 
-            this.bluetoothAdapter = bluetoothManager.getAdapter();
+                    // @TODO . leak :C
+                    registrar.activeContext().registerReceiver(getStateReceiver(), new IntentFilter(BluetoothAdapter.ACTION_STATE_CHANGED));
+                }
+                @Override
+                public void onCancel(Object o) {
+                    stateSink = null;
+                    if (stateReceiver == null) {
+                        return;
+                    }
+                    try {
+                        registrar.activeContext().unregisterReceiver(stateReceiver);
+                    }
+                    catch (IllegalArgumentException ex) {
+                        // Ignore `Receiver not registered` exception
+                    }
+                }
+            });
         }
 
-        // State
+        // Discovery
         {
+            discoveryChannel = new EventChannel(registrar.messenger(), PLUGIN_NAMESPACE + "/discovery");
+
+            discoveryStreamHandler = new StreamHandler() {
+                @Override
+                public void onListen(Object o, EventSink eventSink) {
+                    discoverySink = eventSink;
+                }
+                @Override
+                public void onCancel(Object o) {
+                    Log.d(TAG, "Canceling discovery (stream closed)");
+                    if (discoveryReceiver != null) {
+                        try {
+                            registrar.activeContext().unregisterReceiver(discoveryReceiver);
+                        }
+                        catch (IllegalArgumentException ex) {
+                            // Ignore `Receiver not registered` exception
+                        }
+                    }
+                    
+                    if (bluetoothAdapter != null) {
+                        bluetoothAdapter.cancelDiscovery();
+                    }
+
+                    if (discoverySink != null) {
+                        discoverySink.endOfStream();
+                        discoverySink = null;
+                    }
+                }
+            };
+            discoveryChannel.setStreamHandler(discoveryStreamHandler);
+        }
+    }
+
+    /// Returns Bluetooth adapter, initializing it on first use (`null` if Bluetooth is not available)
+    private BluetoothAdapter getBluetoothAdapter() {
+        if (!bluetoothInitialized) {
+            final long startNanos = System.nanoTime();
+            bluetoothManager = (BluetoothManager) registrar.activity().getSystemService(Context.BLUETOOTH_SERVICE);
+            if (bluetoothManager != null) {
+                bluetoothAdapter = bluetoothManager.getAdapter();
+            }
+            bluetoothInitialized = true;
+            Log.d(TAG, "Bluetooth initialized in " + (System.nanoTime() - startNanos) / 1000 + " us");
+        }
+        return bluetoothAdapter;
+    }
+
+    /// Returns receiver of adapter state changes, creating it on first use
+    private BroadcastReceiver getStateReceiver() {
+        if (stateReceiver == null) {
             stateReceiver = new BroadcastReceiver() {
                 @Override
                 public void onReceive(Context context, Intent intent) {
@@ -118,32 +215,13 @@ public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestP
                     }
                 }
             };
-
-            EventChannel stateChannel = new EventChannel(registrar.messenger(), PLUGIN_NAMESPACE + "/state");
-
-            stateChannel.setStreamHandler(new StreamHandler() {
-                @Override
-                public void onListen(Object o, EventSink eventSink) {
-                    stateSink = eventSink;
-
-                    // @TODO . leak :C
-                    registrar.activeContext().registerReceiver(stateReceiver, new IntentFilter(BluetoothAdapter.ACTION_STATE_CHANGED));
-                }
-                @Override
-                public void onCancel(Object o) {
-                    stateSink = null;
-                    try {
-                        registrar.activeContext().unregisterReceiver(stateReceiver);
-                    }
-                    catch (IllegalArgumentException ex) {
-                        // Ignore `Receiver not registered` exception
-                    }
-                }
-            });
         }
+        return stateReceiver;
+    }
 
-        // Discovery
-        {
+    /// Returns receiver of discovery results, creating it on first use
+    private BroadcastReceiver getDiscoveryReceiver() {
+        if (discoveryReceiver == null) {
             discoveryReceiver = new BroadcastReceiver() {
                 @Override
                 public void onReceive(Context context, Intent intent) {
@@ -194,40 +272,30 @@ public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestP
                     }
                 }
             };
+        }
+        return discoveryReceiver;
+    }
 
-            discoveryChannel = new EventChannel(registrar.messenger(), PLUGIN_NAMESPACE + "/discovery");
-
-            discoveryStreamHandler = new StreamHandler() {
-                @Override
-                public void onListen(Object o, EventSink eventSink) {
-                    discoverySink = eventSink;
-                }
-                @Override
-                public void onCancel(Object o) {
-                    Log.d(TAG, "Canceling discovery (stream closed)");
-                    try {
-                        registrar.activeContext().unregisterReceiver(discoveryReceiver);
-                    }
-                    catch (IllegalArgumentException ex) {
-                        // Ignore `Receiver not registered` exception
-                    }
-                    
-                    bluetoothAdapter.cancelDiscovery();
+    /// Returns executor for connections I/O, creating it on first use
+    private BluetoothIoExecutor getIoExecutor() {
+        if (ioExecutor == null) {
+            ioExecutor = new BluetoothIoExecutor(PLUGIN_NAMESPACE + "-io");
+        }
+        return ioExecutor;
+    }
 
-                    if (discoverySink != null) {
-                        discoverySink.endOfStream();
-                        discoverySink = null;
-                    }
-                }
-            };
-            discoveryChannel.setStreamHandler(discoveryStreamHandler);
+    /// Returns executor for connecting, creating it on first use
+    private BluetoothIoExecutor getConnectExecutor() {
+        if (connectExecutor == null) {
+            connectExecutor = new BluetoothIoExecutor(PLUGIN_NAMESPACE + "-connect", MAX_CONCURRENT_CONNECTS, BluetoothIoExecutor.DEFAULT_QUEUE_CAPACITY);
         }
+        return connectExecutor;
     }
 
     /// Provides access to the plugin methods
     @Override
     public void onMethodCall(MethodCall call, Result result) {
-        if (bluetoothAdapter == null) {
+        if (getBluetoothAdapter() == null) {
             if ("isAvailable".equals(call.method)) {
                 result.success(false);
                 return;
@@ -329,7 +397,7 @@ public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestP
                         IntentFilter intent = new IntentFilter();
                         intent.addAction(BluetoothAdapter.ACTION_DISCOVERY_FINISHED);
                         intent.addAction(BluetoothDevice.ACTION_FOUND);
-                        registrar.activeContext().registerReceiver(discoveryReceiver, intent);
+                        registrar.activeContext().registerReceiver(getDiscoveryReceiver(), intent);
                         
                         bluetoothAdapter.startDiscovery();
                         
@@ -340,11 +408,13 @@ public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestP
 
             case "cancelDiscovery": 
                 Log.d(TAG, "Canceling discovery");
-                try {
-                    registrar.activeContext().unregisterReceiver(discoveryReceiver);
-                }
-                catch (IllegalArgumentException ex) {
-                    // Ignore `Receiver not registered` exception
+                if (discoveryReceiver != null) {
+                    try {
+                        registrar.activeContext().unregisterReceiver(discoveryReceiver);
+                    }
+                    catch (IllegalArgumentException ex) {
+                        // Ignore `Receiver not registered` exception
+                    }
                 }
 
                 bluetoothAdapter.cancelDiscovery();
@@ -378,29 +448,37 @@ public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestP
 
                 int id = ++lastConnectionId;
                 BluetoothConnectionWrapper connection = new BluetoothConnectionWrapper(id, bluetoothAdapter);
+                connection.setTrafficRecorder(trafficRecorder, id);
                 connections.put(id, connection);
 
                 Log.d(TAG, "Connecting to " + address + " (id: " + id + ")");
 
-                AsyncTask.execute(() -> {
-                    try {
-                        connection.connect(address);
-                        registrar.activity().runOnUiThread(new Runnable() {
-                            @Override 
-                            public void run() {
-                                result.success(id);
-                            }
-                        });
-                    }
-                    catch (Exception ex) {
-                        registrar.activity().runOnUiThread(new Runnable() {
-                            @Override 
-                            public void run() {
-                                result.error("connect_error", ex.getMessage(), exceptionToString(ex));
-                            }
-                        });
-                    }
-                });
+                try {
+                    getConnectExecutor().execute(() -> {
+                        try {
+                            connection.connect(address);
+                            registrar.activity().runOnUiThread(new Runnable() {
+                                @Override 
+                                public void run() {
+                                    result.success(id);
+                                }
+                            });
+                        }
+                        catch (Exception ex) {
+                            registrar.activity().runOnUiThread(new Runnable() {
+                                @Override 
+                                public void run() {
+                                    result.error("connect_error", ex.getMessage(), exceptionToString(ex));
+                                }
+                            });
+                        }
+                    });
+                }
+                catch (RejectedExecutionException ex) {
+                    connection.readChannel.setStreamHandler(null);
+                    connections.remove(id);
+                    result.error("io_busy", "too many pending I/O operations", exceptionToString(ex));
+                }
                 break;
             }
 
@@ -419,17 +497,55 @@ public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestP
                     break;
                 }
 
-                BluetoothConnection connection = connections.get(id);
+                BluetoothConnectionWrapper connection = connections.get(id);
                 if (connection == null) {
                     result.error("invalid_argument", "there is no connection with provided id", null);
                     break;
                 }
                 
+                byte[] bytes;
                 if (call.hasArgument("string")) {
                     String string = call.argument("string");
-                    AsyncTask.execute(() -> {
+                    bytes = string.getBytes();
+                }
+                else if (call.hasArgument("bytes")) {
+                    bytes = call.argument("bytes");
+                }
+                else {
+                    result.error("invalid_argument", "there must be 'string' or 'bytes' argument", null);
+                    break;
+                }
+
+                // Optional slice of the data to be written, to avoid copying it. Not used by the Dart library,
+                // which sends views of the slices instead, but available for other callers of the channel.
+                int offset = 0;
+                int length;
+                try {
+                    if (call.hasArgument("offset")) {
+                        offset = call.argument("offset");
+                    }
+                    if (call.hasArgument("length")) {
+                        length = call.argument("length");
+                    }
+                    else {
+                        length = bytes.length - offset;
+                    }
+                }
+                catch (ClassCastException ex) {
+                    result.error("invalid_argument", "'offset' and 'length' arguments are required to be integers", null);
+                    break;
+                }
+                if (offset < 0 || length < 0 || offset > bytes.length || length > bytes.length - offset) {
+                    result.error("invalid_argument", "'offset' and 'length' arguments are out of range of the data", null);
+                    break;
+                }
+                final int sliceOffset = offset;
+                final int sliceLength = length;
+
+                try {
+                    connection.writeQueue.execute(() -> {
                         try {
-                            connection.write(string.getBytes());
+                            connection.write(bytes, sliceOffset, sliceLength);
                             registrar.activity().runOnUiThread(new Runnable() {
                                 @Override 
                                 public void run() {
@@ -447,31 +563,198 @@ public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestP
                         }
                     });
                 }
+                catch (RejectedExecutionException ex) {
+                    result.error("io_busy", "too many pending I/O operations", exceptionToString(ex));
+                }
+                break;
+            }
+
+            case "writeMulti": {
+                if (!call.hasArgument("ids")) {
+                    result.error("invalid_argument", "argument 'ids' not found", null);
+                    break;
+                }
+
+                List<Integer> ids;
+                try {
+                    ids = call.argument("ids");
+                }
+                catch (ClassCastException ex) {
+                    result.error("invalid_argument", "'ids' argument is required to be list of integer ids of connections", null);
+                    break;
+                }
+
+                // Payload is encoded once and the same array is shared by all the writes
+                final byte[] bytes;
+                if (call.hasArgument("string")) {
+                    String string = call.argument("string");
+                    bytes = string.getBytes();
+                }
                 else if (call.hasArgument("bytes")) {
-                    byte[] bytes = call.argument("bytes");
-                    AsyncTask.execute(() -> {
+                    bytes = call.argument("bytes");
+                }
+                else {
+                    result.error("invalid_argument", "there must be 'string' or 'bytes' argument", null);
+                    break;
+                }
+
+                final Map<Integer, Boolean> results = new HashMap<>();
+                if (ids.isEmpty()) {
+                    result.success(results);
+                    break;
+                }
+
+                final AtomicInteger pending = new AtomicInteger(ids.size());
+                for (Integer id : ids) {
+                    BluetoothConnectionWrapper connection = connections.get(id);
+                    if (connection == null) {
+                        onMultiWriteDone(id, false, results, pending, result);
+                        continue;
+                    }
+
+                    try {
+                        connection.writeQueue.execute(() -> {
+                            boolean success;
+                            try {
+                                connection.write(bytes);
+                                success = true;
+                            }
+                            catch (Exception ex) {
+                                Log.d(TAG, "Multi write failed (id: " + id + "): " + ex.getMessage());
+                                success = false;
+                            }
+                            onMultiWriteDone(id, success, results, pending, result);
+                        });
+                    }
+                    catch (RejectedExecutionException ex) {
+                        Log.d(TAG, "Multi write rejected (id: " + id + "): too many pending I/O operations");
+                        onMultiWriteDone(id, false, results, pending, result);
+                    }
+                }
+                break;
+            }
+
+            case "addAutoResponse":
+            case "clearAutoResponses":
+            case "getAutoResponseStats": {
+                if (!call.hasArgument("id")) {
+                    result.error("invalid_argument", "argument 'id' not found", null);
+                    break;
+                }
+
+                int id;
+                try {
+                    id = call.argument("id");
+                }
+                catch (ClassCastException ex) {
+                    result.error("invalid_argument", "'id' argument is required to be integer id of connection", null);
+                    break;
+                }
+
+                BluetoothConnection connection = connections.get(id);
+                if (connection == null) {
+                    result.error("invalid_argument", "there is no connection with provided id", null);
+                    break;
+                }
+
+                AutoResponder responder = connection.getAutoResponder();
+                switch (call.method) {
+                    case "addAutoResponse": {
+                        AutoResponder.Rule rule;
                         try {
-                            connection.write(bytes);
-                            registrar.activity().runOnUiThread(new Runnable() {
-                                @Override 
-                                public void run() {
-                                    result.success(null);
-                                }
-                            });
+                            byte[] pattern = call.argument("pattern");
+                            byte[] reply = call.argument("reply");
+                            int captureOffset = 0;
+                            int captureLength = 0;
+                            if (call.hasArgument("captureOffset")) {
+                                captureOffset = call.argument("captureOffset");
+                            }
+                            if (call.hasArgument("captureLength")) {
+                                captureLength = call.argument("captureLength");
+                            }
+                            boolean hidden = call.hasArgument("hidden") && Boolean.TRUE.equals(call.argument("hidden"));
+                            rule = new AutoResponder.Rule(pattern, reply, captureOffset, captureLength, hidden);
                         }
-                        catch (Exception ex) {
-                            registrar.activity().runOnUiThread(new Runnable() {
-                                @Override 
-                                public void run() {
-                                    result.error("write_error", ex.getMessage(), exceptionToString(ex));
-                                }
-                            });
+                        catch (ClassCastException | IllegalArgumentException ex) {
+                            result.error("invalid_argument", "auto response requires 'pattern' and 'reply' bytes, with optional capture fitting in the reply", null);
+                            break;
                         }
-                    });
+                        result.success(responder.addRule(rule));
+                        break;
+                    }
+
+                    case "clearAutoResponses":
+                        connection.clearAutoResponses();
+                        result.success(null);
+                        break;
+
+                    case "getAutoResponseStats":
+                        result.success(responder.getStats());
+                        break;
                 }
-                else {
-                    result.error("invalid_argument", "there must be 'string' or 'bytes' argument", null);
+                break;
+            }
+
+            case "startTrafficRecording": {
+                if (!call.hasArgument("path")) {
+                    result.error("invalid_argument", "argument 'path' not found", null);
+                    break;
+                }
+
+                String path;
+                try {
+                    path = call.argument("path");
                 }
+                catch (ClassCastException ex) {
+                    result.error("invalid_argument", "'path' argument is required to be string containing file path", null);
+                    break;
+                }
+
+                TrafficRecorder recorder;
+                try {
+                    recorder = new TrafficRecorder(path);
+                }
+                catch (IOException ex) {
+                    result.error("recording_error", ex.getMessage(), exceptionToString(ex));
+                    break;
+                }
+
+                setTrafficRecorder(recorder);
+                Log.d(TAG, "Started traffic recording to " + path);
+                result.success(null);
+                break;
+            }
+
+            case "stopTrafficRecording":
+                setTrafficRecorder(null);
+                Log.d(TAG, "Stopped traffic recording");
+                result.success(null);
+                break;
+
+            case "getIoStats": {
+                Map<String, Object> stats = new HashMap<>();
+                stats.put("io", getIoExecutor().getStats());
+                stats.put("connect", getConnectExecutor().getStats());
+                result.success(stats);
+                break;
+            }
+
+            case "setIoPoolSize": {
+                if (!call.hasArgument("poolSize")) {
+                    result.error("invalid_argument", "argument 'poolSize' not found", null);
+                    break;
+                }
+
+                try {
+                    int poolSize = call.argument("poolSize");
+                    getIoExecutor().setPoolSize(poolSize);
+                }
+                catch (ClassCastException | IllegalArgumentException ex) {
+                    result.error("invalid_argument", "'poolSize' argument is required to be positive integer", null);
+                    break;
+                }
+
+                result.success(null);
                 break;
             }
 
@@ -537,6 +820,42 @@ public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestP
 
 
 
+    /// Replaces traffic recorder of all connections, closing the previous one
+    private void setTrafficRecorder(TrafficRecorder recorder) {
+        TrafficRecorder previous = trafficRecorder;
+        trafficRecorder = recorder;
+
+        int size = connections.size();
+        for (int i = 0; i < size; i++) {
+            connections.valueAt(i).setTrafficRecorder(recorder, connections.keyAt(i));
+        }
+
+        if (previous != null) {
+            try {
+                previous.close();
+            }
+            catch (IOException ex) {
+                Log.d(TAG, "Closing traffic recording failed: " + ex.getMessage());
+            }
+        }
+    }
+
+    /// Helper function to collect results of `writeMulti`, replies once all of the writes are done
+    private void onMultiWriteDone(int id, boolean success, Map<Integer, Boolean> results, AtomicInteger pending, Result result) {
+        synchronized (results) {
+            results.put(id, success);
+        }
+
+        if (pending.decrementAndGet() == 0) {
+            registrar.activity().runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    result.success(results);
+                }
+            });
+        }
+    }
+
     /// Helper function to get string out of exception
     private String exceptionToString(Exception ex) {
         StringWriter sw = new StringWriter();
@@ -555,6 +874,9 @@ public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestP
 
         protected EventChannel readChannel;
 
+        /// Queue keeping writes to this connection in order, executed on shared I/O executor
+        protected final BluetoothIoExecutor.SerialQueue writeQueue = getIoExecutor().newSerialQueue();
+
         private final BluetoothConnectionWrapper self = this;
         private final StreamHandler readStreamHandler = new StreamHandler() {
             @Override
@@ -567,12 +889,20 @@ public class FlutterBluetoothSerialPlugin implements MethodCallHandler, RequestP
                 self.disconnect();
                 
                 // True dispose 
-                AsyncTask.execute(() -> {
+                Runnable dispose = () -> {
                     readChannel.setStreamHandler(null);
                     connections.remove(id);
 
                     Log.d(TAG, "Disconnected (id: " + id + ")");
-                });
+                };
+                try {
+                    // After writes still pending for the connection
+                    writeQueue.execute(dispose);
+                }
+                catch (RejectedExecutionException ex) {
+                    // Disposing must not be skipped
+                    dispose.run();
+                }
             }
         };
 
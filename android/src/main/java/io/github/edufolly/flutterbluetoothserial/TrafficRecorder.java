@@ -0,0 +1,88 @@
+package io.github.edufolly.flutterbluetoothserial;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/// Records chunks of data read and written by connections into compact binary file.
+///
+/// File starts with `MAGIC` and `VERSION`, followed by records of:
+/// timestamp (long, microseconds since start of recording), direction (byte),
+/// connection ID (int), length (int) and the data bytes.
+public class TrafficRecorder implements Closeable
+{
+    public static final int MAGIC = 0x46425352; // "FBSR"
+    public static final short VERSION = 1;
+
+    public static final byte DIRECTION_IN = 0;
+    public static final byte DIRECTION_OUT = 1;
+
+    /// Buffered records are flushed at least that often, so interrupted recording loses little
+    public static final long FLUSH_INTERVAL_NANOS = 1000000000L;
+
+    private final DataOutputStream output;
+    private final long startNanos;
+    private long lastFlushNanos;
+    private boolean closed = false;
+
+
+
+    public TrafficRecorder(OutputStream output) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(output));
+        this.output.writeInt(MAGIC);
+        this.output.writeShort(VERSION);
+        this.startNanos = System.nanoTime();
+        this.lastFlushNanos = startNanos;
+    }
+    public TrafficRecorder(String path) throws IOException {
+        this(new FileOutputStream(path));
+    }
+
+
+
+    /// Records chunk of data, called from connection threads
+    public synchronized void record(int connectionId, byte direction, byte[] data, int offset, int length) {
+        if (closed) {
+            return;
+        }
+
+        try {
+            final long now = System.nanoTime();
+            output.writeLong((now - startNanos) / 1000);
+            output.writeByte(direction);
+            output.writeInt(connectionId);
+            output.writeInt(length);
+            output.write(data, offset, length);
+
+            if (now - lastFlushNanos >= FLUSH_INTERVAL_NANOS) {
+                output.flush();
+                lastFlushNanos = now;
+            }
+        }
+        catch (IOException ex) {
+            // Stop recording instead of disturbing the connection
+            ex.printStackTrace();
+            closeQuietly();
+        }
+    }
+
+    /// Flushes and closes the recording
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        output.close();
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        }
+        catch (IOException ex) {}
+    }
+}
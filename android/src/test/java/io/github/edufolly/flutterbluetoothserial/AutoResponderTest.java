@@ -0,0 +1,129 @@
+package io.github.edufolly.flutterbluetoothserial;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/// Tests of matching and hiding auto responses across chunks of read data.
+public class AutoResponderTest
+{
+    private final AutoResponder responder = new AutoResponder();
+    private final List<String> replies = new ArrayList<>();
+    private final ByteArrayOutputStream delivered = new ByteArrayOutputStream();
+
+    private void read(String chunk) {
+        read(chunk, null);
+    }
+
+    /// Reads the chunk, running `onReply` on each reply, while the chunk is processed
+    private void read(String chunk, Runnable onReply) {
+        byte[] bytes = chunk.getBytes(StandardCharsets.US_ASCII);
+        byte[] data;
+        if (responder.isIdle()) {
+            responder.skip(bytes.length);
+            data = bytes;
+        }
+        else {
+            data = responder.process(bytes, bytes.length, (reply) -> {
+                replies.add(new String(reply, StandardCharsets.US_ASCII));
+                if (onReply != null) {
+                    onReply.run();
+                }
+            });
+        }
+        if (data != null) {
+            delivered.write(data, 0, data.length);
+        }
+    }
+
+    private String delivered() {
+        return new String(delivered.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static AutoResponder.Rule rule(String pattern, String reply, int captureOffset, int captureLength, boolean hidden) {
+        return new AutoResponder.Rule(pattern.getBytes(StandardCharsets.US_ASCII), reply.getBytes(StandardCharsets.US_ASCII), captureOffset, captureLength, hidden);
+    }
+
+    @Test
+    public void hiddenMatchCrossingChunksIsHiddenWhole() {
+        responder.addRule(rule("HB", "ACK__", 3, 2, true));
+
+        read("xHB5");
+        assertEquals("x", delivered());
+        read("6q");
+
+        assertEquals("[ACK56]", replies.toString());
+        assertEquals("xq", delivered());
+    }
+
+    @Test
+    public void heldPrefixIsReleasedWhenNotMatched() {
+        responder.addRule(rule("HEART", "BEAT", 0, 0, true));
+
+        read("abcHE");
+        assertEquals("abc", delivered());
+        read("AT");
+
+        assertEquals("[]", replies.toString());
+        assertEquals("abcHEAT", delivered());
+    }
+
+    @Test
+    public void heldDataIsReleasedOnEnd() {
+        responder.addRule(rule("HEART", "BEAT", 0, 0, true));
+
+        read("abcHEA");
+        byte[] held = responder.release();
+
+        assertEquals("abc", delivered());
+        assertEquals("HEA", new String(held, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void heldDataIsReleasedAfterClearingRules() {
+        responder.addRule(rule("HEART", "BEAT", 0, 0, true));
+
+        read("abcHE");
+        responder.clearRules();
+        read("xyz");
+
+        assertEquals("abcHExyz", delivered());
+    }
+
+    @Test
+    public void visibleMatchCrossingChunksIsReplied() {
+        responder.addRule(rule("PING", "PONG", 0, 0, false));
+
+        read("aPI");
+        read("NGb");
+
+        assertEquals("[PONG]", replies.toString());
+        assertEquals("aPINGb", delivered());
+    }
+
+    @Test
+    public void newRuleMatchesOnlyFollowingData() {
+        responder.addRule(rule("PING", "PONG", 0, 0, false));
+        read("PIN");
+        read("G..");
+        responder.addRule(rule("G..", "DOTS", 0, 0, false));
+        read("xyz");
+
+        assertEquals("[PONG]", replies.toString());
+    }
+
+    @Test
+    public void ruleAddedWhileProcessingMatchesOnlyFollowingData() {
+        responder.addRule(rule("PING", "PONG", 0, 0, false));
+        read("PING", () -> responder.addRule(rule("NG", "LATE", 0, 0, false)));
+        read("x");
+        read("NG");
+
+        assertEquals("[PONG, LATE]", replies.toString());
+    }
+}
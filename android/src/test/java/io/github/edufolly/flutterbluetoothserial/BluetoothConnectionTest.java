@@ -0,0 +1,107 @@
+package io.github.edufolly.flutterbluetoothserial;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/// Tests of connection reading through auto responder, over `FakeSocket`.
+public class BluetoothConnectionTest
+{
+    private static final long TIMEOUT_MILLIS = 5000;
+    private static final long LONG_HOLD_TIMEOUT_MILLIS = TIMEOUT_MILLIS * 2;
+
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final FakeSocket socket = new FakeSocket(bytesOut);
+    private final ByteArrayOutputStream delivered = new ByteArrayOutputStream();
+    private BluetoothConnection connection;
+
+    @Before
+    public void connect() throws Exception {
+        connection = new BluetoothConnection(null) {
+            @Override
+            protected void onRead(byte[] data) {
+                synchronized (delivered) {
+                    delivered.write(data, 0, data.length);
+                    delivered.notifyAll();
+                }
+            }
+            @Override
+            protected void onDisconnected(boolean byRemote) {}
+        };
+        connection.connect(socket.input, socket.output, socket);
+        connection.getAutoResponder().addRule(new AutoResponder.Rule(ascii("\r\nHB"), ascii("ACK"), 0, 0, true));
+    }
+
+    @After
+    public void disconnect() {
+        connection.disconnect();
+    }
+
+    private static byte[] ascii(String string) {
+        return string.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private String delivered() {
+        synchronized (delivered) {
+            return new String(delivered.toByteArray(), StandardCharsets.US_ASCII);
+        }
+    }
+
+    /// Waits until delivered data is as expected, returns it anyway after timeout
+    private String awaitDelivered(String expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        synchronized (delivered) {
+            while (!delivered().equals(expected) && System.currentTimeMillis() < deadline) {
+                delivered.wait(10);
+            }
+            return delivered();
+        }
+    }
+
+    private void awaitBytesOut(long expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (bytesOut.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, bytesOut.get());
+    }
+
+    @Test
+    public void heldDataIsReleasedAfterTimeout() throws Exception {
+        final long start = System.nanoTime();
+        socket.remote.write(ascii("OK\r\n"));
+
+        assertEquals("OK\r\n", awaitDelivered("OK\r\n"));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("released before hold timeout", elapsedMillis >= AutoResponder.DEFAULT_HOLD_TIMEOUT_MILLIS);
+    }
+
+    @Test
+    public void hiddenMatchSplitBeforeTimeoutIsHidden() throws Exception {
+        connection.getAutoResponder().setHoldTimeoutMillis(LONG_HOLD_TIMEOUT_MILLIS);
+        socket.remote.write(ascii("OK\r\n"));
+        assertEquals("OK", awaitDelivered("OK"));
+        socket.remote.write(ascii("HBx"));
+
+        awaitBytesOut(3);
+        assertEquals("OKx", awaitDelivered("OKx"));
+    }
+
+    @Test
+    public void clearingRulesReleasesHeldData() throws Exception {
+        connection.getAutoResponder().setHoldTimeoutMillis(LONG_HOLD_TIMEOUT_MILLIS);
+        socket.remote.write(ascii("OK\r\n"));
+        assertEquals("OK", awaitDelivered("OK"));
+
+        connection.clearAutoResponses();
+        assertEquals("OK\r\n", delivered());
+    }
+}
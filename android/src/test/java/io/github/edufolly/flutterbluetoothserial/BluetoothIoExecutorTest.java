@@ -0,0 +1,211 @@
+package io.github.edufolly.flutterbluetoothserial;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/// Tests of the I/O executor and its serial queues.
+public class BluetoothIoExecutorTest
+{
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private BluetoothIoExecutor executor;
+
+    @After
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /// Occupies a thread of the executor until the returned latch is counted down
+    private CountDownLatch block() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void serialQueuesKeepOrderAcrossSharedThreads() throws Exception {
+        executor = new BluetoothIoExecutor("test", 4, 1024);
+        final int queuesCount = 8;
+        final int tasksCount = 500;
+        final CountDownLatch done = new CountDownLatch(queuesCount * tasksCount);
+
+        List<List<Integer>> orders = new ArrayList<>();
+        for (int q = 0; q < queuesCount; q++) {
+            final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+            orders.add(order);
+            BluetoothIoExecutor.SerialQueue queue = executor.newSerialQueue();
+            for (int i = 0; i < tasksCount; i++) {
+                final int number = i;
+                queue.execute(() -> {
+                    order.add(number);
+                    done.countDown();
+                });
+            }
+        }
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        for (List<Integer> order : orders) {
+            for (int i = 0; i < tasksCount; i++) {
+                assertEquals(i, (int) order.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void fullSerialQueueRejectsTasks() throws Exception {
+        executor = new BluetoothIoExecutor("test", 1, 2);
+        CountDownLatch release = block();
+
+        BluetoothIoExecutor.SerialQueue queue = executor.newSerialQueue();
+        queue.execute(() -> {});
+        queue.execute(() -> {});
+        try {
+            queue.execute(() -> {});
+            fail("task accepted by full queue");
+        }
+        catch (RejectedExecutionException ex) {}
+
+        release.countDown();
+        assertEquals(1L, executor.getStats().get("rejected"));
+    }
+
+    @Test
+    public void rejectedSerialTaskIsNotKept() throws Exception {
+        executor = new BluetoothIoExecutor("test", 1, 2);
+        CountDownLatch release = block();
+        // Fill the executor queue, so the serial queue cannot schedule itself
+        final CountDownLatch fillersDone = new CountDownLatch(2);
+        executor.execute(fillersDone::countDown);
+        executor.execute(fillersDone::countDown);
+
+        final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        BluetoothIoExecutor.SerialQueue queue = executor.newSerialQueue();
+        try {
+            queue.execute(() -> ran.add("rejected"));
+            fail("task accepted while executor is full");
+        }
+        catch (RejectedExecutionException ex) {}
+
+        release.countDown();
+        assertTrue(fillersDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        final CountDownLatch done = new CountDownLatch(1);
+        queue.execute(() -> {
+            ran.add("accepted");
+            done.countDown();
+        });
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("accepted"), ran);
+    }
+
+    @Test
+    public void failingTaskDoesNotStopSerialQueue() throws Exception {
+        executor = new BluetoothIoExecutor("test");
+        final CountDownLatch done = new CountDownLatch(1);
+
+        BluetoothIoExecutor.SerialQueue queue = executor.newSerialQueue();
+        queue.execute(() -> {
+            throw new IllegalStateException("expected by test");
+        });
+        queue.execute(done::countDown);
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void busySerialQueueSharesThreads() throws Exception {
+        executor = new BluetoothIoExecutor("test", 1, 256);
+        CountDownLatch release = block();
+        final int busyTasksCount = 100;
+        final CountDownLatch done = new CountDownLatch(busyTasksCount + 1);
+        final AtomicInteger busyTasksRun = new AtomicInteger();
+        final AtomicInteger busyTasksRunBeforeOther = new AtomicInteger(-1);
+
+        BluetoothIoExecutor.SerialQueue busy = executor.newSerialQueue();
+        for (int i = 0; i < busyTasksCount; i++) {
+            busy.execute(() -> {
+                busyTasksRun.incrementAndGet();
+                done.countDown();
+            });
+        }
+        executor.newSerialQueue().execute(() -> {
+            busyTasksRunBeforeOther.set(busyTasksRun.get());
+            done.countDown();
+        });
+
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(BluetoothIoExecutor.SERIAL_BATCH_SIZE, busyTasksRunBeforeOther.get());
+    }
+
+    @Test
+    public void poolSizeGrowsAndShrinks() throws Exception {
+        executor = new BluetoothIoExecutor("test", 2, 64);
+
+        executor.setPoolSize(6);
+        assertEquals(6, executor.getStats().get("poolSize"));
+        assertEquals(6, maxConcurrency(12));
+
+        executor.setPoolSize(3);
+        assertEquals(3, executor.getStats().get("poolSize"));
+        // Excess threads stop asynchronously
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while ((int) executor.getStats().get("threads") > 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, maxConcurrency(12));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void poolSizeMustBePositive() {
+        executor = new BluetoothIoExecutor("test");
+        executor.setPoolSize(0);
+    }
+
+    /// Runs tasks waiting a while each, returns maximal count of them running at once
+    private int maxConcurrency(int tasksCount) throws InterruptedException {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(tasksCount);
+        for (int i = 0; i < tasksCount; i++) {
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException ex) {}
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        return maxRunning.get();
+    }
+}
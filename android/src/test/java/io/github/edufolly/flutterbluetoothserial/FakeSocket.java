@@ -0,0 +1,129 @@
+package io.github.edufolly.flutterbluetoothserial;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// Fake socket for driving `BluetoothConnection` without Bluetooth device.
+///
+/// Inbound data is written by simulated remote side to `remote` and read by connection from `input`,
+/// outbound data written by connection to `output` is only counted.
+class FakeSocket implements Closeable
+{
+    private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+    final InputStream input;
+    final OutputStream remote;
+    final OutputStream output;
+
+    // Pipe state, guarded by `lock`. `PipedInputStream` is not used, since it polls for data once per second.
+    private final Object lock = new Object();
+    private final byte[] buffer = new byte[PIPE_BUFFER_SIZE];
+    private int readPosition = 0;
+    private int available = 0;
+    private boolean closedByRemote = false;
+    private boolean closed = false;
+
+    FakeSocket(AtomicLong bytesOut) {
+        input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+            }
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                synchronized (lock) {
+                    while (available == 0) {
+                        if (closed) {
+                            throw new IOException("socket closed");
+                        }
+                        if (closedByRemote) {
+                            return -1;
+                        }
+                        waitForLock();
+                    }
+                    int count = Math.min(len, available);
+                    for (int i = 0; i < count; i++) {
+                        b[off + i] = buffer[(readPosition + i) % buffer.length];
+                    }
+                    readPosition = (readPosition + count) % buffer.length;
+                    available -= count;
+                    lock.notifyAll();
+                    return count;
+                }
+            }
+            @Override
+            public void close() {
+                FakeSocket.this.close();
+            }
+        };
+        remote = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                synchronized (lock) {
+                    while (len > 0) {
+                        if (closed || closedByRemote) {
+                            throw new IOException("socket closed");
+                        }
+                        if (available == buffer.length) {
+                            waitForLock();
+                            continue;
+                        }
+                        int count = Math.min(len, buffer.length - available);
+                        int writePosition = (readPosition + available) % buffer.length;
+                        for (int i = 0; i < count; i++) {
+                            buffer[(writePosition + i) % buffer.length] = b[off + i];
+                        }
+                        available += count;
+                        off += count;
+                        len -= count;
+                        lock.notifyAll();
+                    }
+                }
+            }
+            @Override
+            public void close() {
+                synchronized (lock) {
+                    closedByRemote = true;
+                    lock.notifyAll();
+                }
+            }
+        };
+        output = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytesOut.incrementAndGet();
+            }
+            @Override
+            public void write(byte[] b, int off, int len) {
+                bytesOut.addAndGet(len);
+            }
+        };
+    }
+
+    private void waitForLock() throws InterruptedIOException {
+        try {
+            lock.wait();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+    }
+}
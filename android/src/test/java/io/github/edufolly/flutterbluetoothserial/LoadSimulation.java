@@ -0,0 +1,394 @@
+package io.github.edufolly.flutterbluetoothserial;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// Soak/load simulation of many connections at once, run on plain JVM by `LoadSimulationTest`.
+///
+/// Spins up simulated devices behind `FakeSocket`s, each sending messages at configured rate,
+/// while the connections write back at configured rate through `BluetoothIoExecutor` serial queues.
+/// Read data is handed over to single dispatch thread, like the plugin does with UI thread,
+/// where messages are reassembled and their latency is measured.
+///
+/// Reports aggregate throughput, per-connection latency percentiles, thread count and heap growth,
+/// and lists failures for any of them regressed past configured thresholds.
+/// Only threads started by the simulation are counted, since it runs in its own thread group.
+public class LoadSimulation
+{
+    /// Configuration of the simulation and its thresholds
+    public static class Config {
+        public int connections = 32;
+        public int messageSize = 64;
+        public double messagesPerSecond = 50;
+        public int writeSize = 32;
+        public double writesPerSecond = 20;
+        public int durationSeconds = 60;
+        public int warmupSeconds = 5;
+
+        // Thresholds
+        public double minThroughputRatio = 0.9;
+        public double maxP99Millis = 100;
+        public int maxExtraThreads = -1; // Defaults to connections count plus executors threads
+        public double maxHeapGrowthMiB = 16;
+
+        /// Overrides the values with system properties named `prefix` followed by the key
+        public Config withSystemProperties(String prefix) {
+            for (String name : System.getProperties().stringPropertyNames()) {
+                if (name.startsWith(prefix)) {
+                    set(name.substring(prefix.length()), System.getProperty(name));
+                }
+            }
+            return this;
+        }
+
+        public void set(String key, String value) {
+            switch (key) {
+                case "connections": connections = Integer.parseInt(value); break;
+                case "messageSize": messageSize = Integer.parseInt(value); break;
+                case "messagesPerSecond": messagesPerSecond = Double.parseDouble(value); break;
+                case "writeSize": writeSize = Integer.parseInt(value); break;
+                case "writesPerSecond": writesPerSecond = Double.parseDouble(value); break;
+                case "duration": durationSeconds = Integer.parseInt(value); break;
+                case "warmup": warmupSeconds = Integer.parseInt(value); break;
+                case "minThroughputRatio": minThroughputRatio = Double.parseDouble(value); break;
+                case "maxP99Millis": maxP99Millis = Double.parseDouble(value); break;
+                case "maxExtraThreads": maxExtraThreads = Integer.parseInt(value); break;
+                case "maxHeapGrowthMiB": maxHeapGrowthMiB = Double.parseDouble(value); break;
+                default: throw new IllegalArgumentException("unknown option: " + key);
+            }
+        }
+    }
+
+    /// Results of the simulation
+    public static class Report {
+        public double expectedKiBps;
+        public double throughputKiBps;
+        public long messagesDelivered;
+        public long writesRejected;
+        public long p50Micros;
+        public long p99Micros;
+        public long worstConnectionP99Micros;
+        public int baselineThreads;
+        public int peakThreads;
+        public double heapGrowthMiB;
+        public final List<String> failures = new ArrayList<>();
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.format("throughput: %.1f KiB/s (offered %.1f KiB/s)%n", throughputKiBps, expectedKiBps));
+            builder.append(String.format("messages delivered: %d, writes rejected: %d%n", messagesDelivered, writesRejected));
+            builder.append(String.format("latency p50: %.2f ms, p99: %.2f ms, worst connection p99: %.2f ms%n",
+                p50Micros / 1000.0, p99Micros / 1000.0, worstConnectionP99Micros / 1000.0));
+            builder.append(String.format("threads: %d baseline, %d peak%n", baselineThreads, peakThreads));
+            builder.append(String.format("heap growth: %.2f MiB%n", heapGrowthMiB));
+            for (String failure : failures) {
+                builder.append("FAILED: ").append(failure).append(String.format("%n"));
+            }
+            return builder.toString();
+        }
+    }
+
+    private static final long DISCONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final Config config;
+
+
+
+    public LoadSimulation(Config config) {
+        if (config.messageSize < 8) {
+            throw new IllegalArgumentException("message size must fit 8 bytes timestamp");
+        }
+        this.config = config;
+    }
+
+    /// Runs the simulation, blocks for configured duration
+    public Report run() throws IOException, InterruptedException {
+        // Threads are created by the threads which start them, so all simulation threads end up in the group
+        final ThreadGroup group = new ThreadGroup("load-simulation");
+        final FutureTask<Report> simulation = new FutureTask<>(() -> simulate(group));
+        new Thread(group, simulation, "load-simulation").start();
+        try {
+            return simulation.get();
+        }
+        catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    private Report simulate(ThreadGroup group) throws IOException, InterruptedException {
+        final Report report = new Report();
+        final int n = config.connections;
+
+        // Simulated devices and the plugin side helpers
+        final ScheduledThreadPoolExecutor devices = new ScheduledThreadPoolExecutor(n + 1);
+        devices.prestartAllCoreThreads();
+        final ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+        dispatcher.submit(() -> {}); // Start the thread before the baseline
+        final BluetoothIoExecutor ioExecutor = new BluetoothIoExecutor("load-io");
+
+        report.baselineThreads = group.activeCount();
+        final AtomicLong peakThreads = new AtomicLong(report.baselineThreads);
+
+        final AtomicLong bytesOut = new AtomicLong();
+        final AtomicLong bytesDelivered = new AtomicLong();
+        final AtomicLong writesRejected = new AtomicLong();
+        final LatencyHistogram total = new LatencyHistogram();
+        final List<SimulatedConnection> connections = new ArrayList<>(n);
+        final List<FakeSocket> sockets = new ArrayList<>(n);
+
+        for (int i = 0; i < n; i++) {
+            FakeSocket socket = new FakeSocket(bytesOut);
+            SimulatedConnection connection = new SimulatedConnection(dispatcher, total, bytesDelivered);
+            connection.connect(socket.input, socket.output, socket);
+            connections.add(connection);
+            sockets.add(socket);
+        }
+
+        // Sample thread count
+        devices.scheduleAtFixedRate(() -> {
+            long count = group.activeCount();
+            long peak;
+            while (count > (peak = peakThreads.get())) {
+                if (peakThreads.compareAndSet(peak, count)) {
+                    break;
+                }
+            }
+        }, 0, 100, TimeUnit.MILLISECONDS);
+
+        // Traffic: devices sending messages, connections writing back
+        final long startNanos = System.nanoTime();
+        final byte[] writePayload = new byte[config.writeSize];
+        for (int i = 0; i < n; i++) {
+            final FakeSocket socket = sockets.get(i);
+            final BluetoothConnection connection = connections.get(i);
+            final BluetoothIoExecutor.SerialQueue writeQueue = ioExecutor.newSerialQueue();
+            final byte[] message = new byte[config.messageSize];
+
+            if (config.messagesPerSecond > 0) {
+                devices.scheduleAtFixedRate(() -> {
+                    long timestamp = System.nanoTime();
+                    for (int b = 0; b < 8; b++) {
+                        message[b] = (byte) (timestamp >>> (56 - 8 * b));
+                    }
+                    try {
+                        socket.remote.write(message);
+                    }
+                    catch (IOException ex) {
+                        // Connection closed
+                    }
+                }, (long) (1e9 / config.messagesPerSecond * i / n), (long) (1e9 / config.messagesPerSecond), TimeUnit.NANOSECONDS);
+            }
+
+            if (config.writesPerSecond > 0) {
+                devices.scheduleAtFixedRate(() -> {
+                    try {
+                        writeQueue.execute(() -> {
+                            try {
+                                connection.write(writePayload);
+                            }
+                            catch (IOException ex) {
+                                // Connection closed
+                            }
+                        });
+                    }
+                    catch (RejectedExecutionException ex) {
+                        writesRejected.incrementAndGet();
+                    }
+                }, (long) (1e9 / config.writesPerSecond * i / n), (long) (1e9 / config.writesPerSecond), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        // Heap is measured after warm up, and at the end of the run
+        Thread.sleep(TimeUnit.SECONDS.toMillis(Math.min(config.warmupSeconds, config.durationSeconds)));
+        final long heapAfterWarmup = usedHeapAfterGc();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(Math.max(config.durationSeconds - config.warmupSeconds, 0)));
+        final long heapAtEnd = usedHeapAfterGc();
+        final long elapsedNanos = System.nanoTime() - startNanos;
+
+        // Tear down
+        devices.shutdownNow();
+        devices.awaitTermination(DISCONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        for (FakeSocket socket : sockets) {
+            socket.remote.close();
+        }
+        final long deadline = System.currentTimeMillis() + DISCONNECT_TIMEOUT_MILLIS;
+        for (BluetoothConnection connection : connections) {
+            while (connection.isConnected() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            connection.disconnect();
+        }
+        ioExecutor.shutdown();
+        dispatcher.shutdown();
+        dispatcher.awaitTermination(DISCONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // Results
+        final double seconds = elapsedNanos / 1e9;
+        report.expectedKiBps = n * (config.messagesPerSecond * config.messageSize + config.writesPerSecond * config.writeSize) / 1024;
+        report.throughputKiBps = (bytesDelivered.get() + bytesOut.get()) / seconds / 1024;
+        report.messagesDelivered = total.count();
+        report.writesRejected = writesRejected.get();
+        report.p50Micros = total.percentile(0.50);
+        report.p99Micros = total.percentile(0.99);
+        for (SimulatedConnection connection : connections) {
+            report.worstConnectionP99Micros = Math.max(report.worstConnectionP99Micros, connection.latency.percentile(0.99));
+        }
+        report.peakThreads = (int) peakThreads.get();
+        report.heapGrowthMiB = (heapAtEnd - heapAfterWarmup) / (1024.0 * 1024.0);
+
+        // Thresholds
+        if (report.throughputKiBps < report.expectedKiBps * config.minThroughputRatio) {
+            report.failures.add(String.format("throughput below %.0f%% of offered load", config.minThroughputRatio * 100));
+        }
+        if (report.worstConnectionP99Micros > config.maxP99Millis * 1000) {
+            report.failures.add(String.format("connection p99 latency above %.2f ms", config.maxP99Millis));
+        }
+        int maxExtraThreads = config.maxExtraThreads >= 0 ? config.maxExtraThreads : n + BluetoothIoExecutor.DEFAULT_POOL_SIZE;
+        if (report.peakThreads - report.baselineThreads > maxExtraThreads) {
+            report.failures.add("more than " + maxExtraThreads + " threads above baseline");
+        }
+        if (report.heapGrowthMiB > config.maxHeapGrowthMiB) {
+            report.failures.add(String.format("heap grew by more than %.2f MiB", config.maxHeapGrowthMiB));
+        }
+        if (report.writesRejected > 0) {
+            report.failures.add("writes rejected by I/O executor");
+        }
+        return report;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+
+
+    /// Connection delivering read data through single dispatch thread, measuring latency of reassembled messages
+    private class SimulatedConnection extends BluetoothConnection {
+        private final ExecutorService dispatcher;
+        private final LatencyHistogram total;
+        private final AtomicLong bytesDelivered;
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        // Accessed only from dispatcher thread
+        private final byte[] pending = new byte[config.messageSize];
+        private int pendingLength = 0;
+
+        SimulatedConnection(ExecutorService dispatcher, LatencyHistogram total, AtomicLong bytesDelivered) {
+            super(null);
+            this.dispatcher = dispatcher;
+            this.total = total;
+            this.bytesDelivered = bytesDelivered;
+        }
+
+        @Override
+        protected void onRead(byte[] data) {
+            try {
+                dispatcher.execute(() -> deliver(data));
+            }
+            catch (RejectedExecutionException ex) {
+                // Shutting down
+            }
+        }
+
+        @Override
+        protected void onDisconnected(boolean byRemote) {}
+
+        private void deliver(byte[] data) {
+            final long now = System.nanoTime();
+            bytesDelivered.addAndGet(data.length);
+
+            int offset = 0;
+            while (offset < data.length) {
+                int count = Math.min(pending.length - pendingLength, data.length - offset);
+                System.arraycopy(data, offset, pending, pendingLength, count);
+                pendingLength += count;
+                offset += count;
+
+                if (pendingLength == pending.length) {
+                    long timestamp = 0;
+                    for (int b = 0; b < 8; b++) {
+                        timestamp = (timestamp << 8) | (pending[b] & 0xFF);
+                    }
+                    long micros = (now - timestamp) / 1000;
+                    latency.record(micros);
+                    total.record(micros);
+                    pendingLength = 0;
+                }
+            }
+        }
+    }
+
+    /// Log-linear histogram of latencies (in microseconds), constant memory regardless of run length
+    private static class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private final long[] buckets = new long[64 * SUB_BUCKETS];
+        private long count = 0;
+
+        synchronized void record(long micros) {
+            buckets[bucketOf(Math.max(micros, 0))]++;
+            count++;
+        }
+
+        synchronized long count() {
+            return count;
+        }
+
+        /// Returns upper bound of the bucket containing given percentile
+        synchronized long percentile(double percentile) {
+            long target = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target && seen > 0) {
+                    return bucketUpperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        private static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return exponent * SUB_BUCKETS + mantissa;
+        }
+
+        private static long bucketUpperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS;
+            int mantissa = bucket % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + mantissa + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+    }
+
+}
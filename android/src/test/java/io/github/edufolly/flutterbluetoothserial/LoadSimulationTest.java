@@ -0,0 +1,46 @@
+package io.github.edufolly.flutterbluetoothserial;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/// Load tests of many simultaneous connections, see `LoadSimulation`.
+///
+/// Default run checks only thresholds independent of machine speed (threads, heap, rejected writes),
+/// timing thresholds (throughput and latency) are checked by the soak run.
+/// Long soak run is opt-in: `./gradlew test -DloadSimulation.soak=true`, with configuration
+/// overridable by `-DloadSimulation.config.<key>=<value>` properties (see `LoadSimulation.Config`).
+public class LoadSimulationTest
+{
+    @Test
+    public void manyConnectionsStayWithinThresholds() throws Exception {
+        LoadSimulation.Config config = new LoadSimulation.Config();
+        config.durationSeconds = 5;
+        config.warmupSeconds = 1;
+        config.minThroughputRatio = 0;
+        config.maxP99Millis = Double.POSITIVE_INFINITY;
+
+        LoadSimulation.Report report = new LoadSimulation(config).run();
+        assertReportPasses(report);
+        assertTrue("no messages delivered", report.messagesDelivered > 0);
+    }
+
+    @Test
+    public void soak() throws Exception {
+        assumeTrue(Boolean.getBoolean("loadSimulation.soak"));
+
+        LoadSimulation.Config config = new LoadSimulation.Config();
+        config.connections = 40;
+        config.durationSeconds = 30 * 60;
+        config.warmupSeconds = 60;
+        config.withSystemProperties("loadSimulation.config.");
+
+        assertReportPasses(new LoadSimulation(config).run());
+    }
+
+    private static void assertReportPasses(LoadSimulation.Report report) {
+        System.out.print(report);
+        assertTrue(report.toString(), report.failures.isEmpty());
+    }
+}
@@ -0,0 +1,172 @@
+package io.github.edufolly.flutterbluetoothserial;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// Replays traffic recorded by `TrafficRecorder` through `BluetoothConnection`s using fake sockets.
+///
+/// Inbound chunks are fed to the connections input streams and outbound chunks are written
+/// using `BluetoothConnection.write`, at original or accelerated speed. Useful for benchmarking
+/// buffering and framing changes against real captured workloads, without any Bluetooth device.
+public class TrafficReplay
+{
+    /// Creates connection to be used for given recorded connection ID
+    public interface ConnectionFactory {
+        public BluetoothConnection create(int connectionId);
+    }
+
+    /// Single recorded chunk of data
+    public static class Record {
+        public final long timestampMicros;
+        public final byte direction;
+        public final int connectionId;
+        public final byte[] data;
+
+        public Record(long timestampMicros, byte direction, int connectionId, byte[] data) {
+            this.timestampMicros = timestampMicros;
+            this.direction = direction;
+            this.connectionId = connectionId;
+            this.data = data;
+        }
+    }
+
+    /// Results of the replay
+    public static class Stats {
+        public long chunksIn;
+        public long chunksOut;
+        public long bytesIn;
+        public long bytesOut;
+        public long elapsedNanos;
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            return "chunks in/out: " + chunksIn + "/" + chunksOut
+                + ", bytes in/out: " + bytesIn + "/" + bytesOut
+                + ", elapsed: " + String.format("%.3f", seconds) + " s"
+                + ", throughput: " + String.format("%.1f", seconds == 0 ? 0 : (bytesIn + bytesOut) / seconds / 1024) + " KiB/s";
+        }
+    }
+
+    private static final long DISCONNECT_TIMEOUT_MILLIS = 5000;
+
+    /// Records longer than that are considered corrupted
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+    private final List<Record> records;
+    private final ConnectionFactory factory;
+
+
+
+    public TrafficReplay(List<Record> records, ConnectionFactory factory) {
+        this.records = records;
+        this.factory = factory;
+    }
+
+    /// Loads records from recording stream
+    public static List<Record> load(InputStream stream) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(stream));
+        if (input.readInt() != TrafficRecorder.MAGIC) {
+            throw new IOException("not a traffic recording");
+        }
+        short version = input.readShort();
+        if (version != TrafficRecorder.VERSION) {
+            throw new IOException("unsupported traffic recording version: " + version);
+        }
+
+        List<Record> records = new ArrayList<>();
+        while (true) {
+            try {
+                long timestamp = input.readLong();
+                byte direction = input.readByte();
+                int connectionId = input.readInt();
+                int length = input.readInt();
+                if (length < 0 || length > MAX_RECORD_LENGTH) {
+                    throw new IOException("corrupted traffic recording, invalid record length: " + length);
+                }
+                byte[] data = new byte[length];
+                input.readFully(data);
+                records.add(new Record(timestamp, direction, connectionId, data));
+            }
+            catch (EOFException ex) {
+                // End of recording, last record might be incomplete if recording was interrupted
+                break;
+            }
+        }
+        return records;
+    }
+    /// Loads records from recording file
+    public static List<Record> load(String path) throws IOException {
+        try (InputStream stream = new FileInputStream(path)) {
+            return load(stream);
+        }
+    }
+
+
+
+    /// Replays the records, `speed` of 1 keeps original timing, greater values accelerate, 0 replays without delays.
+    /// Returns after all the connections got disconnected.
+    public Stats run(double speed) throws IOException, InterruptedException {
+        final Stats stats = new Stats();
+        final AtomicLong bytesOut = new AtomicLong();
+
+        // Prepare connection for each of recorded connections
+        Map<Integer, BluetoothConnection> connections = new LinkedHashMap<>();
+        Map<Integer, FakeSocket> sockets = new LinkedHashMap<>();
+        for (Record record : records) {
+            if (connections.containsKey(record.connectionId)) {
+                continue;
+            }
+            FakeSocket socket = new FakeSocket(bytesOut);
+            BluetoothConnection connection = factory.create(record.connectionId);
+            connection.connect(socket.input, socket.output, socket);
+            connections.put(record.connectionId, connection);
+            sockets.put(record.connectionId, socket);
+        }
+
+        final long startNanos = System.nanoTime();
+        for (Record record : records) {
+            if (speed > 0) {
+                long delayNanos = (long) (record.timestampMicros * 1000 / speed) - (System.nanoTime() - startNanos);
+                if (delayNanos > 0) {
+                    Thread.sleep(delayNanos / 1000000, (int) (delayNanos % 1000000));
+                }
+            }
+
+            if (record.direction == TrafficRecorder.DIRECTION_IN) {
+                sockets.get(record.connectionId).remote.write(record.data);
+                stats.chunksIn++;
+                stats.bytesIn += record.data.length;
+            }
+            else {
+                connections.get(record.connectionId).write(record.data);
+                stats.chunksOut++;
+            }
+        }
+
+        // Close remote sides, connections should notice end of streams and disconnect
+        for (FakeSocket socket : sockets.values()) {
+            socket.remote.close();
+        }
+        final long deadline = System.currentTimeMillis() + DISCONNECT_TIMEOUT_MILLIS;
+        for (BluetoothConnection connection : connections.values()) {
+            while (connection.isConnected() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            connection.disconnect();
+        }
+
+        stats.elapsedNanos = System.nanoTime() - startNanos;
+        stats.bytesOut = bytesOut.get();
+        return stats;
+    }
+}
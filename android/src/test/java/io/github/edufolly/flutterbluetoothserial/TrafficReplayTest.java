@@ -0,0 +1,99 @@
+package io.github.edufolly.flutterbluetoothserial;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/// Tests of traffic recording and replay.
+///
+/// Real recording could be replayed (as benchmark) with
+/// `./gradlew test -DtrafficReplay.recording=<path> [-DtrafficReplay.speed=<speed>]`.
+public class TrafficReplayTest
+{
+    @Test
+    public void recordingIsReplayedThroughConnections() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        TrafficRecorder recorder = new TrafficRecorder(file);
+        byte[] chunk = new byte[100];
+        for (int i = 0; i < 100; i++) {
+            Arrays.fill(chunk, (byte) i);
+            recorder.record(i % 3 + 1, (i % 2 == 0) ? TrafficRecorder.DIRECTION_IN : TrafficRecorder.DIRECTION_OUT, chunk, 0, chunk.length);
+        }
+        recorder.close();
+
+        List<TrafficReplay.Record> records = TrafficReplay.load(new ByteArrayInputStream(file.toByteArray()));
+        assertEquals(100, records.size());
+        assertEquals(2, records.get(1).connectionId);
+        assertEquals(TrafficRecorder.DIRECTION_OUT, records.get(1).direction);
+
+        AtomicLong readBytes = new AtomicLong();
+        TrafficReplay.Stats stats = new TrafficReplay(records, countingConnections(readBytes)).run(0);
+        assertEquals(50 * chunk.length, stats.bytesIn);
+        assertEquals(50 * chunk.length, stats.bytesOut);
+        assertEquals(stats.bytesIn, readBytes.get());
+    }
+
+    @Test
+    public void incompleteLastRecordIsSkipped() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        TrafficRecorder recorder = new TrafficRecorder(file);
+        recorder.record(1, TrafficRecorder.DIRECTION_IN, new byte[] { 1, 2, 3 }, 0, 3);
+        recorder.record(1, TrafficRecorder.DIRECTION_IN, new byte[] { 4, 5, 6 }, 0, 3);
+        recorder.close();
+        byte[] bytes = file.toByteArray();
+
+        List<TrafficReplay.Record> records = TrafficReplay.load(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertEquals(1, records.size());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, records.get(0).data);
+    }
+
+    @Test(expected = IOException.class)
+    public void negativeRecordLengthIsRejected() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        TrafficRecorder recorder = new TrafficRecorder(file);
+        recorder.record(1, TrafficRecorder.DIRECTION_IN, new byte[] { 1, 2, 3 }, 0, 3);
+        recorder.close();
+        byte[] bytes = file.toByteArray();
+        // Length follows header (6 bytes), timestamp, direction and connection ID
+        Arrays.fill(bytes, 6 + 8 + 1 + 4, 6 + 8 + 1 + 4 + 4, (byte) 0xFF);
+
+        TrafficReplay.load(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    public void replayRecording() throws Exception {
+        String path = System.getProperty("trafficReplay.recording");
+        assumeTrue(path != null);
+        double speed = Double.parseDouble(System.getProperty("trafficReplay.speed", "1"));
+
+        AtomicLong readBytes = new AtomicLong();
+        TrafficReplay.Stats stats = new TrafficReplay(TrafficReplay.load(path), countingConnections(readBytes)).run(speed);
+        System.out.println(stats + ", delivered to onRead: " + readBytes.get() + " bytes");
+        assertEquals(stats.bytesIn, readBytes.get());
+    }
+
+    private static TrafficReplay.ConnectionFactory countingConnections(AtomicLong readBytes) {
+        return new TrafficReplay.ConnectionFactory() {
+            @Override
+            public BluetoothConnection create(int connectionId) {
+                return new BluetoothConnection(null) {
+                    @Override
+                    protected void onRead(byte[] data) {
+                        readBytes.addAndGet(data.length);
+                    }
+                    @Override
+                    protected void onDisconnected(boolean byRemote) {}
+                };
+            }
+        };
+    }
+}
@@ -54,6 +54,66 @@ class BluetoothConnection {
     );
   }
 
+  /// Writes the same data to many connections at once.
+  ///
+  /// The data is passed to platform code only once and written to all the connections in parallel.
+  /// It is ordered with data added to `output` of each connection: sent after data added before,
+  /// and before data added after the call.
+  /// Returns map describing for each of the connections whether the data was written successfully,
+  /// which is `false` for connections with closed `output`.
+  static Future<Map<BluetoothConnection, bool>> writeMulti(List<BluetoothConnection> connections, Uint8List data) async {
+    final List<BluetoothConnection> connected = connections.where((connection) => connection.isConnected).toList();
+    if (connected.isEmpty) {
+      return Map.fromIterable(connections, value: (connection) => false);
+    }
+
+    // Invoked at once like writes of the outputs, platform code keeps them in order
+    final Future<Map> written = FlutterBluetoothSerial._methodChannel.invokeMethod('writeMulti', {
+      'ids': connected.map((connection) => connection._id).toList(),
+      'bytes': data,
+    });
+
+    // Let `allSent` of the outputs include this write
+    for (final connection in connected) {
+      final _BluetoothStreamSink<Uint8List> output = connection.output;
+      output._chainedFutures = output._chainedFutures.then((_) => written).then((_) {}, onError: (_) {});
+    }
+
+    final Map results = await written;
+    return Map.fromIterable(connections, value: (connection) => results[connection._id] == true);
+  }
+
+  /// Registers automatic response for given pattern in incoming data, returns index of the rule.
+  ///
+  /// The `reply` is written directly by platform code as soon as the `pattern` is received,
+  /// without passing through Dart, which is useful for heartbeats or acknowledgements with short deadlines.
+  /// If `captureLength` is given, that many bytes following the pattern (like sequence number)
+  /// are copied into the reply at `captureOffset`. Matched bytes can be `hidden` from the `input` stream.
+  /// Received bytes which might start hidden match are delayed until following data decides,
+  /// but at most for a short timeout (50 milliseconds).
+  Future<int> addAutoResponse(Uint8List pattern, Uint8List reply, {
+    int captureOffset = 0,
+    int captureLength = 0,
+    bool hidden = false,
+  }) async => await FlutterBluetoothSerial._methodChannel.invokeMethod('addAutoResponse', {
+    'id': _id,
+    'pattern': pattern,
+    'reply': reply,
+    'captureOffset': captureOffset,
+    'captureLength': captureLength,
+    'hidden': hidden,
+  });
+
+  /// Removes all automatic responses of the connection.
+  Future<void> clearAutoResponses() async =>
+    await FlutterBluetoothSerial._methodChannel.invokeMethod('clearAutoResponses', {'id': _id});
+
+  /// Returns statistics (matches count and hidden bytes) of each automatic response, in order of adding.
+  Future<List<Map<String, dynamic>>> getAutoResponseStats() async {
+    final List list = await FlutterBluetoothSerial._methodChannel.invokeMethod('getAutoResponseStats', {'id': _id});
+    return list.map((stats) => Map<String, dynamic>.from(stats)).toList();
+  }
+
   void dispose() {
     finish();
   }
@@ -111,20 +171,30 @@ class _BluetoothStreamSink<Uint8List> extends StreamSink<Uint8List> {
   /// all added data are sent. 
   /// 
   /// You should use some encoding to send string, for example `ascii.encode('Hello!')` or `utf8.encode('Cześć!)`. 
+  /// 
+  /// Views (like `Uint8List.view(buffer, offset, length)`) are accepted too, only the viewed bytes are sent.
+  /// The data is encoded before returning, so the buffer could be reused right after the call.
   @override
   void add(Uint8List data) {
     if (isConnected) {
-      _chainedFutures = _chainedFutures.then((_) async {
-        if (this != null && this.isConnected) {
-          await FlutterBluetoothSerial._methodChannel.invokeMethod('write', {'id': _id, 'bytes': data});
-        }
-      }).catchError((e) {
-        this.exception = e;
-        close();
-      });
+      // Invoked at once, so the data is encoded before caller could change it.
+      // Platform code writes data of the connection in order of invoking.
+      final Future<void> sent = FlutterBluetoothSerial._methodChannel.invokeMethod('write', {'id': _id, 'bytes': data})
+        .then((_) {}, onError: (e) {
+          this.exception = e;
+          close();
+        });
+      _chainedFutures = _chainedFutures.then((_) => sent);
     }
   }
 
+  /// Adds part of the raw bytes to the output sink, without copying it first with `sublist`.
+  /// 
+  /// Useful for sending chunks of larger buffer, which could be reused right after the call, see `add` for details.
+  void addSlice(Uint8List data, int offset, int length) {
+    add(_sliceView(data, offset, length));
+  }
+
   /// Unsupported - this ouput sink cannot pass errors to platfom code.
   @override
   void addError(Object error, [StackTrace stackTrace]) {
@@ -180,3 +250,11 @@ class _BluetoothStreamSink<Uint8List> extends StreamSink<Uint8List> {
     this._chainedFutures = Future.value(); // Just in case if Dart VM is retarded
   });
 }
+
+/// Returns view of part of the data, without copying it.
+/// 
+/// Defined outside of `_BluetoothStreamSink`, since its type parameter hides `Uint8List` class.
+Uint8List _sliceView(Uint8List data, int offset, int length) {
+  RangeError.checkValidRange(offset, offset + length, data.length);
+  return Uint8List.view(data.buffer, data.offsetInBytes + offset, length);
+}
@@ -92,6 +92,27 @@ class FlutterBluetoothSerial {
   Future<void> cancelDiscovery() async => await _methodChannel.invokeMethod('cancelDiscovery');
 
 
+  /* Connections I/O */
+  /// Returns statistics of platform executors used for connections I/O, under `io` key for writing
+  /// and disposing, and under `connect` key for connecting. Statistics include counts of executed
+  /// and rejected tasks and time spent by tasks waiting in queues.
+  Future<Map<String, dynamic>> getIoStats() async =>
+    Map<String, dynamic>.from(await _methodChannel.invokeMethod('getIoStats'));
+
+  /// Changes number of threads used by platform executor for writing to connections.
+  Future<void> setIoPoolSize(int poolSize) async =>
+    await _methodChannel.invokeMethod('setIoPoolSize', {'poolSize': poolSize});
+
+  /// Starts recording traffic of all connections into binary file at given path on the device.
+  ///
+  /// The recording could be replayed for performance testing by `TrafficReplayTest` of platform unit tests.
+  Future<void> startTrafficRecording(String path) async =>
+    await _methodChannel.invokeMethod('startTrafficRecording', {'path': path});
+
+  /// Stops recording traffic of connections.
+  Future<void> stopTrafficRecording() async => await _methodChannel.invokeMethod('stopTrafficRecording');
+
+
   // Default connection methods
   BluetoothConnection _defaultConnection;
 